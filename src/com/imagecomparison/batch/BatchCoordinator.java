@@ -0,0 +1,377 @@
+package com.imagecomparison.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Coordinator for sharded batch comparisons across several worker JVMs
+ *
+ * Splits a manifest of image pairs into shards, hands them out through a
+ * WorkQueue, launches worker processes with small heaps, restarts workers that
+ * crash and finally merges every shard result into a single TSV report.
+ *
+ * Manifest format: one pair per line, the two paths separated by a tab
+ * (or by whitespace when the paths contain no spaces). Blank lines and
+ * lines starting with '#' are ignored.
+ */
+public class BatchCoordinator {
+
+    private static final long POLL_MILLIS = 200;
+    private static final int SHARDS_PER_WORKER = 4;
+    private static final int MAX_SHARD_CRASHES = 2;
+
+    private final Path manifestPath;
+    private final Path reportPath;
+    private final int workerCount;
+    private final String workerHeap;
+    private final int shardSize;
+    private final long stealAfterMillis;
+    private final int maxRestarts;
+
+    /**
+     * Constructor for BatchCoordinator
+     * @param manifestPath Manifest listing the image pairs to compare
+     * @param reportPath Where the merged TSV report is written
+     * @param workerCount Number of worker JVMs to run at once
+     * @param workerHeap Maximum heap of each worker (-Xmx value, e.g. "256m")
+     * @param shardSize Pairs per shard, or 0 to derive it from the batch size
+     * @param stealAfterMillis Claim age after which idle workers steal a shard
+     * @param maxRestarts How many worker crashes not caused by a shard are tolerated without progress
+     */
+    public BatchCoordinator(Path manifestPath, Path reportPath, int workerCount, String workerHeap,
+                            int shardSize, long stealAfterMillis, int maxRestarts) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        this.manifestPath = manifestPath;
+        this.reportPath = reportPath;
+        this.workerCount = workerCount;
+        this.workerHeap = workerHeap;
+        this.shardSize = shardSize;
+        this.stealAfterMillis = stealAfterMillis;
+        this.maxRestarts = maxRestarts;
+    }
+
+    /**
+     * Runs the whole batch and writes the merged report. The report is written
+     * even when the batch stops early; entries without a result are reported
+     * as errors and the queue directory is kept for inspection.
+     * @return Summary of the batch
+     * @throws Exception If the manifest cannot be read or the report cannot be written
+     */
+    public BatchSummary run() throws Exception {
+        List<String> entries = readManifest(manifestPath);
+        Path queueDir = Files.createTempDirectory("image-comparison-batch-");
+        WorkQueue queue = new WorkQueue(queueDir);
+        int shardCount = writeShards(queue, entries);
+        boolean finished = runWorkers(queue, shardCount);
+
+        BatchSummary summary = mergeResults(queue, entries);
+        if (finished) {
+            deleteRecursively(queueDir);
+        } else {
+            System.err.println("Warning: Batch stopped early; queue and worker logs kept at " + queueDir);
+        }
+        return summary;
+    }
+
+    /**
+     * Reads the manifest and numbers its entries as "index\tpath1\tpath2"
+     */
+    private static List<String> readManifest(Path manifest) throws IOException {
+        List<String> entries = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] paths = trimmed.contains("\t") ? trimmed.split("\t+") : trimmed.split("\\s+");
+            if (paths.length != 2) {
+                throw new IOException("Invalid manifest line " + lineNumber + ": expected two image paths");
+            }
+            entries.add(entries.size() + "\t" + paths[0].trim() + "\t" + paths[1].trim());
+        }
+        return entries;
+    }
+
+    private int writeShards(WorkQueue queue, List<String> entries) throws IOException {
+        int size = shardSize > 0 ? shardSize
+            : Math.max(1, (int) Math.ceil(entries.size() / (double) (workerCount * SHARDS_PER_WORKER)));
+
+        int shardCount = 0;
+        for (int start = 0; start < entries.size(); start += size) {
+            String name = String.format("%s%05d%s", WorkQueue.SHARD_PREFIX, shardCount, WorkQueue.SHARD_SUFFIX);
+            queue.addShard(name, entries.subList(start, Math.min(start + size, entries.size())));
+            shardCount++;
+        }
+        return shardCount;
+    }
+
+    /**
+     * Launches the workers and supervises them until every shard is finished
+     *
+     * A worker that dies while holding a shard has the shard charged with the
+     * crash. After MAX_SHARD_CRASHES crashes the shard is split in two, and a
+     * single entry that keeps crashing workers gets an ERROR result, so one
+     * oversized pair cannot stall the batch. Crashes that cannot be charged to
+     * a shard count against maxRestarts until some shard finishes again.
+     * @return true if every shard finished, false if the workers gave up
+     */
+    private boolean runWorkers(WorkQueue queue, int shardCount) throws Exception {
+        Process[] workers = new Process[Math.min(workerCount, Math.max(1, shardCount))];
+        for (int id = 0; id < workers.length; id++) {
+            workers[id] = launchWorker(queue, id);
+        }
+
+        int unchargedCrashes = 0;
+        int lastResults = 0;
+        try {
+            while (!queue.isDrained()) {
+                int results = queue.countResults();
+                if (results > lastResults) {
+                    lastResults = results;
+                    unchargedCrashes = 0;
+                }
+
+                boolean anyAlive = false;
+                for (int id = 0; id < workers.length; id++) {
+                    Process worker = workers[id];
+                    if (worker != null && worker.isAlive()) {
+                        anyAlive = true;
+                        continue;
+                    }
+
+                    if (worker != null) {
+                        workers[id] = null;
+                        boolean crashed = worker.exitValue() != 0;
+                        boolean charged = recoverClaims(queue, id, crashed);
+                        if (crashed) {
+                            System.err.println("Worker " + id + " exited with code " + worker.exitValue()
+                                + " (log: " + getLogPath(queue, id) + ")");
+                            if (!charged) {
+                                unchargedCrashes++;
+                            }
+                        }
+                    }
+
+                    // Idle slots pick up work that was handed back by crashed workers
+                    if (queue.countPending() > 0 && unchargedCrashes <= maxRestarts) {
+                        workers[id] = launchWorker(queue, id);
+                        anyAlive = true;
+                    }
+                }
+
+                if (!anyAlive && !queue.isDrained()) {
+                    System.err.println("Batch aborted: all workers stopped after "
+                        + unchargedCrashes + " crash(es) without progress");
+                    return false;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            return true;
+        } finally {
+            for (Process worker : workers) {
+                if (worker != null) {
+                    worker.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the shards held by a worker that has exited
+     * @return true if the worker crashed while holding at least one unfinished shard
+     */
+    private boolean recoverClaims(WorkQueue queue, int id, boolean crashed) throws IOException {
+        boolean charged = false;
+        for (Path shard : queue.getClaimed(id)) {
+            String name = shard.getFileName().toString();
+            if (!crashed || queue.hasResult(name)) {
+                queue.requeue(shard);
+                continue;
+            }
+
+            charged = true;
+            int crashes = queue.recordCrash(name);
+            if (crashes < MAX_SHARD_CRASHES) {
+                queue.requeue(shard);
+                continue;
+            }
+
+            List<String> lines = queue.readClaimedEntries(shard);
+            if (lines.size() > 1) {
+                System.err.println("Shard " + name + " crashed " + crashes + " workers, splitting it");
+                queue.split(shard);
+            } else {
+                List<String> errors = new ArrayList<>();
+                for (String line : lines) {
+                    errors.add(BatchWorker.errorResult(line, "Worker crashed " + crashes + " times on this pair"));
+                }
+                queue.complete(shard, errors);
+            }
+        }
+        return charged;
+    }
+
+    private Process launchWorker(WorkQueue queue, int id) throws IOException {
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(javaBin);
+        // Die at once on OutOfMemoryError so the crash is charged to the shard being processed
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        if (workerHeap != null && !workerHeap.isEmpty()) {
+            command.add("-Xmx" + workerHeap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BatchWorker.class.getName());
+        command.add(queue.getRoot().toString());
+        command.add(String.valueOf(id));
+        command.add(String.valueOf(stealAfterMillis));
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(getLogPath(queue, id).toFile()));
+        return builder.start();
+    }
+
+    private static Path getLogPath(WorkQueue queue, int id) {
+        return queue.getRoot().resolve("worker-" + id + ".log");
+    }
+
+    /**
+     * Collects the shard results in manifest order and writes the report;
+     * entries without a result are reported as errors
+     */
+    private BatchSummary mergeResults(WorkQueue queue, List<String> entries) throws IOException {
+        String[] byIndex = new String[entries.size()];
+        for (String line : queue.readAllResults()) {
+            String[] fields = line.split("\t", -1);
+            if (line.isEmpty() || fields.length < 4) {
+                continue;
+            }
+            int index = Integer.parseInt(fields[0]);
+            // An entry is published twice when the owner raced past a thief's limit; prefer a successful result
+            if (byIndex[index] == null || BatchWorker.STATUS_OK.equals(fields[3])) {
+                byIndex[index] = line;
+            }
+        }
+
+        List<String> report = new ArrayList<>();
+        report.add("index\timage1\timage2\tstatus\tsimilarity\tmse\texactMatch\tmethodOrError");
+
+        int succeeded = 0;
+        int unprocessed = 0;
+        int exactMatches = 0;
+        double similaritySum = 0.0;
+        for (int i = 0; i < byIndex.length; i++) {
+            String line = byIndex[i];
+            if (line == null) {
+                line = BatchWorker.errorResult(entries.get(i), "Not processed");
+                unprocessed++;
+            }
+            report.add(line);
+
+            String[] fields = line.split("\t", -1);
+            if (fields.length >= 7 && BatchWorker.STATUS_OK.equals(fields[3])) {
+                succeeded++;
+                similaritySum += Double.parseDouble(fields[4]);
+                if (Boolean.parseBoolean(fields[6])) {
+                    exactMatches++;
+                }
+            }
+        }
+
+        Path parent = reportPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(reportPath, report, StandardCharsets.UTF_8);
+
+        double averageSimilarity = succeeded > 0 ? similaritySum / succeeded : 0.0;
+        return new BatchSummary(entries.size(), succeeded, entries.size() - succeeded, unprocessed,
+                                exactMatches, averageSimilarity);
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Warning: Could not clean up batch queue " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Totals of a finished batch run
+     */
+    public static class BatchSummary {
+
+        private final int totalPairs;
+        private final int succeeded;
+        private final int failed;
+        private final int unprocessed;
+        private final int exactMatches;
+        private final double averageSimilarity;
+
+        public BatchSummary(int totalPairs, int succeeded, int failed, int unprocessed,
+                            int exactMatches, double averageSimilarity) {
+            this.totalPairs = totalPairs;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.unprocessed = unprocessed;
+            this.exactMatches = exactMatches;
+            this.averageSimilarity = averageSimilarity;
+        }
+
+        public int getTotalPairs() {
+            return totalPairs;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getUnprocessed() {
+            return unprocessed;
+        }
+
+        public int getExactMatches() {
+            return exactMatches;
+        }
+
+        public double getAverageSimilarity() {
+            return averageSimilarity;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== Batch Comparison Summary ===\n");
+            sb.append("Pairs: ").append(totalPairs).append("\n");
+            sb.append("Compared: ").append(succeeded).append("\n");
+            sb.append("Failed: ").append(failed).append("\n");
+            if (unprocessed > 0) {
+                sb.append("Not Processed: ").append(unprocessed).append("\n");
+            }
+            sb.append("Exact Matches: ").append(exactMatches).append("\n");
+            sb.append("Average Similarity: ").append(String.format(Locale.ROOT, "%.2f", averageSimilarity)).append("%\n");
+            sb.append("================================");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.imagecomparison.batch;
+
+import com.imagecomparison.comparison.Compare;
+import com.imagecomparison.comparison.ComparisonResult;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Worker process of a sharded batch run
+ *
+ * Claims shards from the WorkQueue until none are left, compares every image
+ * pair of a shard and publishes one result line per pair. When the queue is
+ * empty it steals the unfinished tail of shards that other workers have held
+ * for too long, so a single slow worker does not hold up the whole batch.
+ */
+public class BatchWorker {
+
+    public static final String STATUS_OK = "OK";
+    public static final String STATUS_ERROR = "ERROR";
+
+    private static final long IDLE_POLL_MILLIS = 200;
+
+    private final WorkQueue queue;
+    private final int workerId;
+    private final long stealAfterMillis;
+
+    /**
+     * Constructor for BatchWorker
+     * @param queue Queue shared with the coordinator
+     * @param workerId Id of this worker
+     * @param stealAfterMillis Claim age after which another worker's shard may be stolen
+     */
+    public BatchWorker(WorkQueue queue, int workerId, long stealAfterMillis) {
+        this.queue = queue;
+        this.workerId = workerId;
+        this.stealAfterMillis = stealAfterMillis;
+    }
+
+    /**
+     * Processes shards until the queue is drained
+     * @return Number of shards processed by this worker
+     */
+    public int run() throws IOException {
+        int processed = 0;
+        while (true) {
+            Path shard = queue.claim(workerId);
+            if (shard == null) {
+                shard = queue.steal(workerId, stealAfterMillis);
+            }
+            if (shard == null) {
+                if (queue.countPending() == 0 && !queue.hasOutstandingClaims(workerId)) {
+                    return processed;
+                }
+                // Others are still busy; wait until their shards become old enough to steal
+                sleep(IDLE_POLL_MILLIS);
+                continue;
+            }
+
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(shard, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+
+            if (processShard(shard, lines)) {
+                processed++;
+            }
+        }
+    }
+
+    /**
+     * Compares the entries of a claimed shard, stopping early when a thief
+     * has taken the tail or another worker has already published the shard
+     * @return true if this worker published the result
+     */
+    private boolean processShard(Path shard, List<String> lines) throws IOException {
+        String name = shard.getFileName().toString();
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (queue.hasResult(name)) {
+                queue.release(shard);
+                return false;
+            }
+            if (i >= queue.getLimit(shard)) {
+                break;
+            }
+            if (!lines.get(i).isEmpty()) {
+                results.add(processEntry(lines.get(i)));
+            }
+            queue.recordProgress(shard, i + 1);
+        }
+        queue.complete(shard, results);
+        return true;
+    }
+
+    /**
+     * Compares a single manifest entry of the form index, path1, path2 (tab separated)
+     * @return Result line: index, path1, path2, status, then either
+     *         similarity, MSE, exact match and method, or an error message
+     */
+    static String processEntry(String entry) {
+        String[] fields = entry.split("\t", -1);
+        if (fields.length < 3) {
+            return errorResult(entry, "Malformed shard entry");
+        }
+
+        String prefix = fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t";
+        try {
+            Compare compare = new Compare(fields[1], fields[2]);
+            ComparisonResult result = compare.getDetailedResult();
+            return prefix + STATUS_OK + "\t"
+                + String.format(Locale.ROOT, "%.4f", result.getSimilarityPercentage()) + "\t"
+                + String.format(Locale.ROOT, "%.4f", result.getMeanSquaredError()) + "\t"
+                + result.isExactMatch() + "\t"
+                + sanitize(result.getComparisonMethod());
+        } catch (Exception e) {
+            return prefix + STATUS_ERROR + "\t" + sanitize(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds an error result line for a manifest entry that could not be compared
+     * @param entry Manifest entry (index, path1, path2, tab separated)
+     * @param message Reason reported in the result
+     */
+    static String errorResult(String entry, String message) {
+        String[] fields = entry.split("\t", -1);
+        if (fields.length < 3) {
+            return entry + "\t\t" + STATUS_ERROR + "\t" + sanitize(message);
+        }
+        return fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t" + STATUS_ERROR + "\t" + sanitize(message);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Worker interrupted", e);
+        }
+    }
+
+    private static String sanitize(String text) {
+        return text == null ? "" : text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Entry point used by the coordinator when launching worker JVMs
+     * Usage: BatchWorker &lt;queueDir&gt; &lt;workerId&gt; &lt;stealAfterMillis&gt;
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: java com.imagecomparison.batch.BatchWorker <queueDir> <workerId> <stealAfterMillis>");
+            System.exit(2);
+        }
+
+        WorkQueue queue = new WorkQueue(Paths.get(args[0]));
+        BatchWorker worker = new BatchWorker(queue, Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        worker.run();
+    }
+}
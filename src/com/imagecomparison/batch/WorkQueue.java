@@ -0,0 +1,425 @@
+package com.imagecomparison.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Local file-based work queue shared by the batch coordinator and its workers
+ *
+ * Each shard of work is a small text file. Ownership is transferred with atomic
+ * renames, so no locks are needed and every process sees a consistent state:
+ * <pre>
+ *   pending/shard-00000.txt               waiting to be claimed
+ *   claimed/worker-2/shard-00000.txt      being processed by worker 2
+ *   claimed/worker-2/shard-00000.txt.progress   entries worker 2 has finished
+ *   claimed/worker-2/shard-00000.txt.limit      where worker 2 stops after a steal
+ *   claimed/worker-3/shard-00000-s.txt    tail of the shard stolen by worker 3
+ *   results/shard-00000.tsv               finished (published atomically)
+ *   crashes/shard-00000.txt.crashes       workers that died holding the shard
+ * </pre>
+ */
+public class WorkQueue {
+
+    public static final String SHARD_PREFIX = "shard-";
+    public static final String SHARD_SUFFIX = ".txt";
+    public static final String RESULT_SUFFIX = ".tsv";
+
+    private final Path root;
+    private final Path pendingDir;
+    private final Path claimedDir;
+    private final Path resultsDir;
+    private final Path crashesDir;
+
+    /**
+     * Opens (and creates if needed) a queue rooted at the given directory
+     * @param root Queue directory
+     * @throws IOException If the directory layout cannot be created
+     */
+    public WorkQueue(Path root) throws IOException {
+        this.root = root;
+        this.pendingDir = root.resolve("pending");
+        this.claimedDir = root.resolve("claimed");
+        this.resultsDir = root.resolve("results");
+        this.crashesDir = root.resolve("crashes");
+        Files.createDirectories(pendingDir);
+        Files.createDirectories(claimedDir);
+        Files.createDirectories(resultsDir);
+        Files.createDirectories(crashesDir);
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Adds a shard to the pending directory
+     * @param shardName Shard file name (e.g. shard-00003.txt)
+     * @param lines Manifest lines belonging to the shard
+     */
+    public void addShard(String shardName, List<String> lines) throws IOException {
+        Path tmp = root.resolve(shardName + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        moveAtomically(tmp, pendingDir.resolve(shardName));
+    }
+
+    /**
+     * Claims the next pending shard for a worker
+     * @param workerId Id of the claiming worker
+     * @return Path of the claimed shard, or null if nothing is pending
+     */
+    public Path claim(int workerId) throws IOException {
+        Path workerDir = getWorkerDir(workerId);
+        Files.createDirectories(workerDir);
+
+        for (Path shard : listShards(pendingDir)) {
+            Path target = workerDir.resolve(shard.getFileName());
+            try {
+                moveAtomically(shard, target);
+                // Renames keep the old timestamp; reset it so steal() measures claim age
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                return target;
+            } catch (NoSuchFileException e) {
+                // Another worker won the rename, try the next one
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Steals the unfinished tail of a shard that another worker has held for
+     * longer than the given age. The thief takes the second half of the
+     * entries the owner has not reached yet as a new shard (the original name
+     * plus "-s"), and a limit file tells the owner where to stop, so no entry
+     * is compared twice unless the owner races past the limit before seeing
+     * it. A shard is split this way at most once per claim.
+     * @param workerId Id of the stealing worker
+     * @param minAgeMillis Minimum time the shard must have been claimed
+     * @return Path of the stolen shard, or null if there is nothing to steal
+     */
+    public Path steal(int workerId, long minAgeMillis) throws IOException {
+        Path workerDir = getWorkerDir(workerId);
+        Files.createDirectories(workerDir);
+        long now = System.currentTimeMillis();
+
+        for (Path otherDir : listDirectories(claimedDir)) {
+            if (otherDir.equals(workerDir)) {
+                continue;
+            }
+            for (Path shard : listShards(otherDir)) {
+                String name = shard.getFileName().toString();
+                if (hasResult(name) || Files.exists(getLimitPath(shard))) {
+                    continue;
+                }
+                try {
+                    if (now - Files.getLastModifiedTime(shard).toMillis() < minAgeMillis) {
+                        continue;
+                    }
+
+                    // The owner is busy with entry 'done'; it keeps up to the limit, the thief takes the rest
+                    List<String> lines = Files.readAllLines(shard, StandardCharsets.UTF_8);
+                    int done = readCounter(getProgressPath(shard), 0);
+                    int remaining = lines.size() - done;
+                    if (remaining < 2) {
+                        continue;
+                    }
+                    int limit = done + remaining / 2;
+
+                    // Write the stolen shard before the limit, so a crash in between only duplicates work
+                    String stolenName = name.substring(0, name.length() - SHARD_SUFFIX.length()) + "-s" + SHARD_SUFFIX;
+                    Path stolen = workerDir.resolve(stolenName);
+                    Path stolenTmp = workerDir.resolve(stolenName + ".tmp");
+                    Files.write(stolenTmp, lines.subList(limit, lines.size()), StandardCharsets.UTF_8);
+                    moveAtomically(stolenTmp, stolen);
+
+                    Path limitTmp = otherDir.resolve(name + ".limit.tmp-" + workerId);
+                    Files.write(limitTmp, String.valueOf(limit).getBytes(StandardCharsets.UTF_8));
+                    try {
+                        // No REPLACE_EXISTING: only one thief may set the limit
+                        Files.move(limitTmp, getLimitPath(shard));
+                    } catch (FileAlreadyExistsException e) {
+                        Files.deleteIfExists(limitTmp);
+                        Files.deleteIfExists(stolen);
+                        continue;
+                    }
+                    return stolen;
+                } catch (NoSuchFileException e) {
+                    // Shard finished in the meantime
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether any other worker still holds a shard that has no result
+     * and has not been split by a thief yet, i.e. whether there may be
+     * something to steal later on
+     * @param workerId Id of the asking worker
+     */
+    public boolean hasOutstandingClaims(int workerId) throws IOException {
+        Path workerDir = getWorkerDir(workerId);
+        for (Path otherDir : listDirectories(claimedDir)) {
+            if (otherDir.equals(workerDir)) {
+                continue;
+            }
+            for (Path shard : listShards(otherDir)) {
+                if (!hasResult(shard.getFileName().toString()) && !Files.exists(getLimitPath(shard))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records how many entries of a claimed shard the owner has finished, so
+     * a thief knows which entries are still left
+     */
+    public void recordProgress(Path claimedShard, int done) throws IOException {
+        Path tmp = claimedShard.resolveSibling(claimedShard.getFileName() + ".progress.tmp");
+        Files.write(tmp, String.valueOf(done).getBytes(StandardCharsets.UTF_8));
+        moveAtomically(tmp, getProgressPath(claimedShard));
+    }
+
+    /**
+     * Number of entries of a claimed shard the owner should process before
+     * stopping; smaller than the shard size once a thief has taken the tail
+     */
+    public int getLimit(Path claimedShard) throws IOException {
+        return readCounter(getLimitPath(claimedShard), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the entries of a claimed shard that still belong to its holder,
+     * i.e. without the tail a thief has taken
+     */
+    public List<String> readClaimedEntries(Path claimedShard) throws IOException {
+        List<String> lines = Files.readAllLines(claimedShard, StandardCharsets.UTF_8);
+        int limit = getLimit(claimedShard);
+        return limit < lines.size() ? new ArrayList<>(lines.subList(0, limit)) : lines;
+    }
+
+    /**
+     * Publishes the result lines of a claimed shard and releases the claim.
+     * If a result for the shard already exists it is kept and nothing is published.
+     * @param claimedShard Path returned by claim() or steal()
+     * @param resultLines Result lines for the entries processed by the holder
+     */
+    public void complete(Path claimedShard, List<String> resultLines) throws IOException {
+        String shardName = claimedShard.getFileName().toString();
+        if (!hasResult(shardName)) {
+            Path tmp = claimedShard.resolveSibling(shardName + ".result.tmp");
+            Files.write(tmp, resultLines, StandardCharsets.UTF_8);
+            moveAtomically(tmp, resultsDir.resolve(toResultName(shardName)));
+        }
+        release(claimedShard);
+    }
+
+    /**
+     * Drops a claim together with its progress and limit files
+     */
+    public void release(Path claimedShard) throws IOException {
+        Files.deleteIfExists(claimedShard);
+        Files.deleteIfExists(getProgressPath(claimedShard));
+        Files.deleteIfExists(getLimitPath(claimedShard));
+    }
+
+    /**
+     * Lists the shards currently held by a worker
+     * @param workerId Id of the worker
+     */
+    public List<Path> getClaimed(int workerId) throws IOException {
+        Path workerDir = getWorkerDir(workerId);
+        if (!Files.isDirectory(workerDir)) {
+            return new ArrayList<>();
+        }
+        return listShards(workerDir);
+    }
+
+    /**
+     * Puts a claimed shard back into the pending directory, used when the
+     * worker process died before finishing it. Entries taken by a thief are
+     * left out. Shards that already have a result or are pending again are
+     * simply released.
+     * @param claimedShard Path of the claimed shard
+     * @return true if the shard was re-queued
+     */
+    public boolean requeue(Path claimedShard) throws IOException {
+        String name = claimedShard.getFileName().toString();
+        if (hasResult(name) || Files.exists(pendingDir.resolve(name))) {
+            release(claimedShard);
+            return false;
+        }
+        addShard(name, readClaimedEntries(claimedShard));
+        release(claimedShard);
+        return true;
+    }
+
+    /**
+     * Replaces a claimed shard with two pending halves, so a single entry
+     * that crashes workers no longer takes the rest of the shard down with it
+     * @param claimedShard Path of a claimed shard with at least two entries
+     */
+    public void split(Path claimedShard) throws IOException {
+        String name = claimedShard.getFileName().toString();
+        String base = name.substring(0, name.length() - SHARD_SUFFIX.length());
+        List<String> lines = readClaimedEntries(claimedShard);
+        int middle = lines.size() / 2;
+        addShard(base + "-0" + SHARD_SUFFIX, lines.subList(0, middle));
+        addShard(base + "-1" + SHARD_SUFFIX, lines.subList(middle, lines.size()));
+        release(claimedShard);
+    }
+
+    /**
+     * Increments the crash counter of a shard; only the coordinator writes it
+     * @param shardName Shard file name
+     * @return Number of workers that have crashed while holding the shard
+     */
+    public int recordCrash(String shardName) throws IOException {
+        Path marker = crashesDir.resolve(shardName + ".crashes");
+        int crashes = 1;
+        if (Files.exists(marker)) {
+            crashes += Integer.parseInt(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim());
+        }
+        Files.write(marker, String.valueOf(crashes).getBytes(StandardCharsets.UTF_8));
+        return crashes;
+    }
+
+    /**
+     * Checks whether every shard has been finished, i.e. nothing is pending
+     * and every remaining claim already has a published result
+     */
+    public boolean isDrained() throws IOException {
+        if (!listShards(pendingDir).isEmpty()) {
+            return false;
+        }
+        for (Path workerDir : listDirectories(claimedDir)) {
+            for (Path shard : listShards(workerDir)) {
+                if (!hasResult(shard.getFileName().toString())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a result has been published for the given shard
+     */
+    public boolean hasResult(String shardName) {
+        return Files.exists(resultsDir.resolve(toResultName(shardName)));
+    }
+
+    /**
+     * Counts the shards that have a published result
+     */
+    public int countResults() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(resultsDir, "*" + RESULT_SUFFIX)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the shards still waiting to be claimed
+     */
+    public int countPending() throws IOException {
+        return listShards(pendingDir).size();
+    }
+
+    /**
+     * Reads the result lines of every published shard, in shard name order
+     */
+    public List<String> readAllResults() throws IOException {
+        List<Path> results = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(resultsDir, "*" + RESULT_SUFFIX)) {
+            for (Path result : stream) {
+                results.add(result);
+            }
+        }
+        Collections.sort(results);
+
+        List<String> lines = new ArrayList<>();
+        for (Path result : results) {
+            lines.addAll(Files.readAllLines(result, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static Path getProgressPath(Path claimedShard) {
+        return claimedShard.resolveSibling(claimedShard.getFileName() + ".progress");
+    }
+
+    private static Path getLimitPath(Path claimedShard) {
+        return claimedShard.resolveSibling(claimedShard.getFileName() + ".limit");
+    }
+
+    /**
+     * Reads a small integer file, or returns the default if it does not exist yet
+     */
+    private static int readCounter(Path file, int defaultValue) throws IOException {
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return defaultValue;
+        }
+    }
+
+    private Path getWorkerDir(int workerId) {
+        return claimedDir.resolve("worker-" + workerId);
+    }
+
+    private static String toResultName(String shardName) {
+        return shardName.substring(0, shardName.length() - SHARD_SUFFIX.length()) + RESULT_SUFFIX;
+    }
+
+    /**
+     * Renames a file atomically, falling back to a plain rename on file
+     * systems that do not support atomic moves
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static List<Path> listShards(Path dir) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SHARD_PREFIX + "*" + SHARD_SUFFIX)) {
+            for (Path shard : stream) {
+                shards.add(shard);
+            }
+        }
+        Collections.sort(shards);
+        return shards;
+    }
+
+    private static List<Path> listDirectories(Path dir) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                if (Files.isDirectory(entry)) {
+                    dirs.add(entry);
+                }
+            }
+        }
+        Collections.sort(dirs);
+        return dirs;
+    }
+}
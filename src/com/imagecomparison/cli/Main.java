@@ -1,9 +1,15 @@
 package com.imagecomparison.cli;
 
+import com.imagecomparison.batch.BatchCoordinator;
 import com.imagecomparison.comparison.Compare;
 import com.imagecomparison.comparison.ComparisonResult;
+import com.imagecomparison.comparison.PreparedImage;
 import com.imagecomparison.processing.ImageSpider;
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Enhanced Main class demonstrating the improved image comparison capabilities
@@ -12,6 +18,18 @@ public class Main {
     
     public static void main(String[] args) throws Exception {
         
+        // Batch mode: compare every pair of a manifest using several worker JVMs
+        if (args.length >= 1 && "--batch".equals(args[0])) {
+            runBatch(args);
+            return;
+        }
+        
+        // Baseline mode: compare one reference image against many candidates
+        if (args.length >= 1 && "--baseline".equals(args[0])) {
+            runBaseline(args);
+            return;
+        }
+        
         // Use relative paths that work on any operating system
         String basePath = getProjectBasePath();
         String image1Path = basePath + "assets" + File.separator + "1.jpg";
@@ -38,7 +56,13 @@ public class Main {
         performComparison(image1Path, image1Path);
         
         // Test 4: Demonstrate command line arguments if provided
-        if (args.length >= 2) {
+        if (args.length >= 3 && "--align".equals(args[0])) {
+            System.out.println("\n" + "=".repeat(50) + "\n");
+            System.out.println("Test 4: Comparing user-provided images with alignment");
+            System.out.println("Image 1: " + args[1]);
+            System.out.println("Image 2: " + args[2]);
+            performComparison(args[1], args[2], true);
+        } else if (args.length >= 2) {
             System.out.println("\n" + "=".repeat(50) + "\n");
             System.out.println("Test 4: Comparing user-provided images");
             System.out.println("Image 1: " + args[0]);
@@ -47,16 +71,112 @@ public class Main {
         } else {
             System.out.println("\nTip: You can provide two image paths as command line arguments to compare your own images:");
             System.out.println("java com.imagecomparison.cli.Main path/to/image1.jpg path/to/image2.jpg");
+            System.out.println("Add --align before the paths to compensate for shifted content:");
+            System.out.println("java com.imagecomparison.cli.Main --align path/to/image1.jpg path/to/image2.jpg");
+            System.out.println("Or check many candidates against one reference image:");
+            System.out.println("java com.imagecomparison.cli.Main --baseline reference.jpg candidate1.jpg candidate2.jpg ...");
+            System.out.println("Or compare a whole manifest of pairs with several worker processes:");
+            System.out.println("java com.imagecomparison.cli.Main --batch pairs.tsv [--workers N] [--heap 256m] [--shard-size K] [--output report.tsv]");
+        }
+    }
+    
+    /**
+     * Prepares the reference image once and compares every candidate against it
+     */
+    private static void runBaseline(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: java com.imagecomparison.cli.Main --baseline <reference> <candidate>...");
+            System.exit(2);
+        }
+        
+        System.out.println("=== Baseline Image Comparison ===");
+        System.out.println("Reference: " + args[1] + "\n");
+        
+        PreparedImage reference = new PreparedImage(new ImageSpider(args[1]));
+        List<String> candidates = Arrays.asList(args).subList(2, args.length);
+        List<ComparisonResult> results = reference.compareAll(candidates.stream());
+        
+        for (int i = 0; i < results.size(); i++) {
+            ComparisonResult result = results.get(i);
+            System.out.println("Candidate: " + candidates.get(i));
+            System.out.println(result.toString());
+            System.out.println();
+        }
+    }
+    
+    /**
+     * Parses batch mode options and runs the sharded batch coordinator
+     */
+    private static void runBatch(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java com.imagecomparison.cli.Main --batch <manifest> [--workers N] [--heap SIZE]"
+                + " [--shard-size K] [--steal-after MILLIS] [--max-restarts N] [--output FILE]");
+            System.exit(2);
+        }
+        
+        Path manifest = Paths.get(args[1]);
+        Path report = Paths.get(args[1] + ".report.tsv");
+        int workers = Runtime.getRuntime().availableProcessors();
+        String heap = "256m";
+        int shardSize = 0;
+        long stealAfterMillis = 30000;
+        int maxRestarts = 3;
+        
+        for (int i = 2; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--workers":
+                    workers = Integer.parseInt(value);
+                    break;
+                case "--heap":
+                    heap = value;
+                    break;
+                case "--shard-size":
+                    shardSize = Integer.parseInt(value);
+                    break;
+                case "--steal-after":
+                    stealAfterMillis = Long.parseLong(value);
+                    break;
+                case "--max-restarts":
+                    maxRestarts = Integer.parseInt(value);
+                    break;
+                case "--output":
+                    report = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown batch option: " + args[i - 1]);
+            }
         }
+        
+        System.out.println("=== Batch Image Comparison ===");
+        System.out.println("Manifest: " + manifest);
+        System.out.println("Workers: " + workers + " (heap " + heap + " each)\n");
+        
+        BatchCoordinator coordinator = new BatchCoordinator(manifest, report, workers, heap,
+                                                            shardSize, stealAfterMillis, maxRestarts);
+        BatchCoordinator.BatchSummary summary = coordinator.run();
+        
+        System.out.println(summary.toString());
+        System.out.println("Report written to: " + report);
     }
     
     /**
      * Performs comprehensive image comparison and displays results
      */
     private static void performComparison(String path1, String path2) {
+        performComparison(path1, path2, false);
+    }
+    
+    /**
+     * Performs image comparison, optionally aligning the images first, and displays results
+     */
+    private static void performComparison(String path1, String path2, boolean align) {
         try {
             // Create comparison object
-            Compare compare = new Compare(path1, path2);
+            Compare compare = new Compare(path1, path2, align);
             
             // Check if comparison completed successfully
             if (!compare.isDone()) {
@@ -73,7 +193,10 @@ public class Main {
             // Additional analysis
             System.out.println("\n--- Analysis Summary ---");
             
-            if (result.isExactMatch()) {
+            if (result.isOverlapMatch()) {
+                System.out.println("RESULT: Images are IDENTICAL IN OVERLAP (offset "
+                    + result.getOffsetX() + ", " + result.getOffsetY() + ")");
+            } else if (result.isExactMatch()) {
                 System.out.println("RESULT: Images are IDENTICAL");
             } else if (result.isSimilar(95.0)) {
                 System.out.println("RESULT: Images are VERY SIMILAR (>95% match)");
@@ -25,6 +25,17 @@ public class Compare {
      * @throws Exception If images cannot be loaded or compared
      */
     public Compare(String path1, String path2) throws Exception {
+        this(path1, path2, false);
+    }
+
+    /**
+     * Constructor that performs image comparison, optionally aligning the images first
+     * @param path1 Path to first image
+     * @param path2 Path to second image
+     * @param align Whether to detect and compensate a translation between the images
+     * @throws Exception If images cannot be loaded or compared
+     */
+    public Compare(String path1, String path2, boolean align) throws Exception {
         this.imagePath1 = path1;
         this.imagePath2 = path2;
         
@@ -35,10 +46,13 @@ public class Compare {
             
             // Perform comparison using enhanced algorithm
             CompareHandler compareHandler = new CompareHandler();
-            detailedResult = compareHandler.compareImages(imageSpider1, imageSpider2);
+            detailedResult = align
+                ? compareHandler.compareImagesWithAlignment(imageSpider1, imageSpider2)
+                : compareHandler.compareImages(imageSpider1, imageSpider2);
             
             // Set legacy boolean result for backward compatibility
-            same = detailedResult.isExactMatch();
+            // An aligned exact match only means the overlap is identical
+            same = detailedResult.isTheSame();
             done = true;
             
         } catch (Exception e) {
@@ -134,7 +148,7 @@ public class Compare {
 
     /**
      * Check if images are exactly the same (backward compatibility)
-     * @return true if images are identical
+     * @return true if images are identical, with equal dimensions and no alignment offset
      */
     public boolean isTheSame() {
         return this.same;
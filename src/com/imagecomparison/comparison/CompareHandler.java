@@ -46,26 +46,80 @@ public class CompareHandler {
         return performPixelByPixelComparison(spider1, spider2);
     }
 
+    /**
+     * Shift-tolerant comparison: estimates the translation between the images
+     * with FFT phase correlation and compares only the overlapping region
+     * @param spider1 First image spider
+     * @param spider2 Second image spider
+     * @return ComparisonResult with the detected offset
+     */
+    public ComparisonResult compareImagesWithAlignment(ImageSpider spider1, ImageSpider spider2) {
+        return compareImagesWithAlignment(spider1, spider2, new ImageAligner());
+    }
+
+    /**
+     * Shift-tolerant comparison using a caller-provided aligner, so its FFT
+     * buffers can be reused across comparisons. ImageAligner is not
+     * thread-safe; use one per thread.
+     * @param spider1 First image spider
+     * @param spider2 Second image spider
+     * @param aligner Aligner used to estimate the offset
+     * @return ComparisonResult with the detected offset
+     */
+    public ComparisonResult compareImagesWithAlignment(ImageSpider spider1, ImageSpider spider2,
+                                                       ImageAligner aligner) {
+        if (!spider1.isJobDone() || !spider2.isJobDone()) {
+            return new ComparisonResult(false, 0.0, Double.MAX_VALUE, 0, 0, false,
+                "Error", "One or both images failed to load properly");
+        }
+
+        int[] offset = aligner.estimateOffset(spider1, spider2);
+        return performPixelByPixelComparison(spider1, spider2, offset[0], offset[1], true);
+    }
+
     /**
      * Performs detailed pixel-by-pixel comparison
      */
     private ComparisonResult performPixelByPixelComparison(ImageSpider spider1, ImageSpider spider2) {
-        int width = spider1.getWidth();
-        int height = spider1.getHeight();
+        return performPixelByPixelComparison(spider1, spider2, 0, 0, false);
+    }
+
+    /**
+     * Performs pixel-by-pixel comparison of the region where spider1(x, y)
+     * overlaps spider2(x + offsetX, y + offsetY)
+     */
+    private ComparisonResult performPixelByPixelComparison(ImageSpider spider1, ImageSpider spider2,
+                                                           int offsetX, int offsetY, boolean aligned) {
+        boolean sameDimensions = (spider1.getWidth() == spider2.getWidth()) && 
+                                (spider1.getHeight() == spider2.getHeight());
+        int startX = Math.max(0, -offsetX);
+        int startY = Math.max(0, -offsetY);
+        int endX = Math.min(spider1.getWidth(), spider2.getWidth() - offsetX);
+        int endY = Math.min(spider1.getHeight(), spider2.getHeight() - offsetY);
+        int width = Math.max(0, endX - startX);
+        int height = Math.max(0, endY - startY);
         int totalPixels = width * height;
+        String method = aligned ? "Aligned Pixel-by-Pixel Analysis" : "Pixel-by-Pixel Analysis";
+
+        if (totalPixels == 0) {
+            return new ComparisonResult(false, 0.0, Double.MAX_VALUE, 0, 0, sameDimensions,
+                method, String.format("No overlap at offset (%d, %d)", offsetX, offsetY),
+                aligned, offsetX, offsetY);
+        }
+
         int matchingPixels = 0;
         double totalSquaredError = 0.0;
         
         // Compare each pixel
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
                 int r1 = spider1.getRedPixel(x, y);
                 int g1 = spider1.getGreenPixel(x, y);
                 int b1 = spider1.getBluePixel(x, y);
                 
-                int r2 = spider2.getRedPixel(x, y);
-                int g2 = spider2.getGreenPixel(x, y);
-                int b2 = spider2.getBluePixel(x, y);
+                int r2 = spider2.getRedPixel(x + offsetX, y + offsetY);
+                int g2 = spider2.getGreenPixel(x + offsetX, y + offsetY);
+                int b2 = spider2.getBluePixel(x + offsetX, y + offsetY);
                 
                 // Check for exact pixel match
                 if (r1 == r2 && g1 == g2 && b1 == b2) {
@@ -83,12 +137,13 @@ public class CompareHandler {
         double meanSquaredError = totalSquaredError / (totalPixels * 3); // Divide by 3 for RGB channels
         boolean exactMatch = matchingPixels == totalPixels;
         
-        String details = String.format("Analyzed %dx%d images with %d total pixels", 
-                                     width, height, totalPixels);
+        String details = aligned
+            ? String.format("Analyzed %dx%d overlapping region with %d total pixels", width, height, totalPixels)
+            : String.format("Analyzed %dx%d images with %d total pixels", width, height, totalPixels);
         
         return new ComparisonResult(exactMatch, similarityPercentage, meanSquaredError,
-                                  matchingPixels, totalPixels, true, 
-                                  "Pixel-by-Pixel Analysis", details);
+                                  matchingPixels, totalPixels, sameDimensions, 
+                                  method, details, aligned, offsetX, offsetY);
     }
 
     /**
@@ -13,6 +13,9 @@ public class ComparisonResult {
     private final boolean sameDimensions;
     private final String comparisonMethod;
     private final String details;
+    private final boolean aligned;
+    private final int offsetX;
+    private final int offsetY;
     
     /**
      * Constructor for ComparisonResult
@@ -29,6 +32,30 @@ public class ComparisonResult {
                            double meanSquaredError, int matchingPixels, 
                            int totalPixels, boolean sameDimensions,
                            String comparisonMethod, String details) {
+        this(exactMatch, similarityPercentage, meanSquaredError, matchingPixels, totalPixels,
+             sameDimensions, comparisonMethod, details, false, 0, 0);
+    }
+    
+    /**
+     * Constructor for ComparisonResult of an aligned (shift-tolerant) comparison
+     * @param exactMatch Whether the compared regions are exactly identical; for an
+     *                   aligned comparison this only covers the overlapping region
+     * @param similarityPercentage Percentage of matching pixels (0-100)
+     * @param meanSquaredError MSE value for image differences
+     * @param matchingPixels Number of exactly matching pixels
+     * @param totalPixels Total number of pixels compared
+     * @param sameDimensions Whether images have same dimensions
+     * @param comparisonMethod Method used for comparison
+     * @param details Additional details about the comparison
+     * @param aligned Whether the images were aligned before comparing
+     * @param offsetX Detected horizontal shift of the second image
+     * @param offsetY Detected vertical shift of the second image
+     */
+    public ComparisonResult(boolean exactMatch, double similarityPercentage, 
+                           double meanSquaredError, int matchingPixels, 
+                           int totalPixels, boolean sameDimensions,
+                           String comparisonMethod, String details,
+                           boolean aligned, int offsetX, int offsetY) {
         this.exactMatch = exactMatch;
         this.similarityPercentage = similarityPercentage;
         this.meanSquaredError = meanSquaredError;
@@ -37,6 +64,9 @@ public class ComparisonResult {
         this.sameDimensions = sameDimensions;
         this.comparisonMethod = comparisonMethod;
         this.details = details;
+        this.aligned = aligned;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
     }
     
     // Getter methods
@@ -72,12 +102,34 @@ public class ComparisonResult {
         return details;
     }
     
+    public boolean isAligned() {
+        return aligned;
+    }
+    
+    public int getOffsetX() {
+        return offsetX;
+    }
+    
+    public int getOffsetY() {
+        return offsetY;
+    }
+    
     /**
      * Backwards compatibility method - returns true if similarity is 100%
+     * and, for aligned comparisons, the images are the same size with no offset
      * @return true if images are exactly the same
      */
     public boolean isTheSame() {
-        return exactMatch;
+        return exactMatch && sameDimensions && offsetX == 0 && offsetY == 0;
+    }
+    
+    /**
+     * Check if an aligned comparison matched exactly only within the
+     * overlapping region, i.e. the images are shifted or differ in size
+     * @return true if the overlap is identical but the images are not
+     */
+    public boolean isOverlapMatch() {
+        return exactMatch && !isTheSame();
     }
     
     /**
@@ -99,6 +151,9 @@ public class ComparisonResult {
         sb.append("Matching Pixels: ").append(matchingPixels).append(" / ").append(totalPixels).append("\n");
         sb.append("Same Dimensions: ").append(sameDimensions ? "Yes" : "No").append("\n");
         sb.append("Mean Squared Error: ").append(String.format("%.2f", meanSquaredError)).append("\n");
+        if (aligned) {
+            sb.append("Alignment Offset: (").append(offsetX).append(", ").append(offsetY).append(")\n");
+        }
         if (details != null && !details.isEmpty()) {
             sb.append("Details: ").append(details).append("\n");
         }
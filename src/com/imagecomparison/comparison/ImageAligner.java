@@ -0,0 +1,247 @@
+package com.imagecomparison.comparison;
+
+import com.imagecomparison.processing.FFT2D;
+import com.imagecomparison.processing.ImageSpider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimates the translation between two images using FFT phase correlation
+ *
+ * The offset is first found on downsampled luma planes, then refined on a
+ * full-resolution crop of the overlapping region, so the cost stays
+ * O(n log n) instead of growing with the area of the search window.
+ * FFT instances and work buffers are kept per plane size and reused across
+ * calls; an aligner is therefore not thread-safe.
+ */
+public class ImageAligner {
+
+    public static final int DEFAULT_MAX_PLANE_SIZE = 256;
+    public static final double DEFAULT_MAX_SHIFT_FRACTION = 0.25;
+
+    private static final int MIN_REFINE_SIZE = 16;
+    private static final double EPSILON = 1e-12;
+    private static final double MIN_PEAK_TO_RMS = 6.0;
+
+    private final int maxPlaneSize;
+    private final double maxShiftFraction;
+    private final Map<Long, Workspace> workspaces = new HashMap<>();
+
+    /**
+     * Creates an aligner with the default plane size and shift limit
+     */
+    public ImageAligner() {
+        this(DEFAULT_MAX_PLANE_SIZE, DEFAULT_MAX_SHIFT_FRACTION);
+    }
+
+    /**
+     * Constructor for ImageAligner
+     * @param maxPlaneSize Largest side of the downsampled luma planes (power of two)
+     * @param maxShiftFraction Largest detectable shift as a fraction of the image size (0-0.5)
+     */
+    public ImageAligner(int maxPlaneSize, double maxShiftFraction) {
+        if (!FFT2D.isPowerOfTwo(maxPlaneSize) || maxPlaneSize < MIN_REFINE_SIZE) {
+            throw new IllegalArgumentException("Plane size must be a power of two >= " + MIN_REFINE_SIZE + ": " + maxPlaneSize);
+        }
+        if (maxShiftFraction <= 0.0 || maxShiftFraction > 0.5) {
+            throw new IllegalArgumentException("Shift fraction must be in (0, 0.5]: " + maxShiftFraction);
+        }
+        this.maxPlaneSize = maxPlaneSize;
+        this.maxShiftFraction = maxShiftFraction;
+    }
+
+    /**
+     * Estimates how far the content of the second image is shifted relative to
+     * the first, so that spider2(x + dx, y + dy) matches spider1(x, y)
+     * @param spider1 First (reference) image
+     * @param spider2 Second image
+     * @return Detected offset {dx, dy}
+     */
+    public int[] estimateOffset(ImageSpider spider1, ImageSpider spider2) {
+        int w1 = spider1.getWidth();
+        int h1 = spider1.getHeight();
+        int w2 = spider2.getWidth();
+        int h2 = spider2.getHeight();
+
+        // Coarse estimate on downsampled luma planes
+        int largestSide = Math.max(Math.max(w1, h1), Math.max(w2, h2));
+        int factor = Math.max(1, (largestSide + maxPlaneSize - 1) / maxPlaneSize);
+        int sw1 = Math.max(1, w1 / factor);
+        int sh1 = Math.max(1, h1 / factor);
+        int sw2 = Math.max(1, w2 / factor);
+        int sh2 = Math.max(1, h2 / factor);
+
+        Workspace coarse = getWorkspace(FFT2D.nextPowerOfTwo(Math.max(sw1, sw2)),
+                                        FFT2D.nextPowerOfTwo(Math.max(sh1, sh2)));
+        fillPlane(spider1, 0, 0, sw1, sh1, factor, coarse, coarse.re1, coarse.im1);
+        fillPlane(spider2, 0, 0, sw2, sh2, factor, coarse, coarse.re2, coarse.im2);
+        int[] shift = correlate(coarse,
+            (int) Math.ceil(maxShiftFraction * Math.max(sw1, sw2)),
+            (int) Math.ceil(maxShiftFraction * Math.max(sh1, sh2)));
+
+        int dx = shift[0] * factor;
+        int dy = shift[1] * factor;
+        if (factor == 1) {
+            return new int[] {dx, dy};
+        }
+
+        // Refine on a full-resolution crop of the overlap; the residual is at most one sample step
+        int x0 = Math.max(0, -dx);
+        int y0 = Math.max(0, -dy);
+        int overlapWidth = Math.min(w1, w2 - dx) - x0;
+        int overlapHeight = Math.min(h1, h2 - dy) - y0;
+        if (overlapWidth < MIN_REFINE_SIZE || overlapHeight < MIN_REFINE_SIZE) {
+            return new int[] {dx, dy};
+        }
+
+        int cropWidth = Math.min(maxPlaneSize, Integer.highestOneBit(overlapWidth));
+        int cropHeight = Math.min(maxPlaneSize, Integer.highestOneBit(overlapHeight));
+        int cropX = x0 + (overlapWidth - cropWidth) / 2;
+        int cropY = y0 + (overlapHeight - cropHeight) / 2;
+
+        Workspace fine = getWorkspace(cropWidth, cropHeight);
+        fillPlane(spider1, cropX, cropY, cropWidth, cropHeight, 1, fine, fine.re1, fine.im1);
+        fillPlane(spider2, cropX + dx, cropY + dy, cropWidth, cropHeight, 1, fine, fine.re2, fine.im2);
+        int[] residual = correlate(fine, factor, factor);
+
+        return new int[] {dx + residual[0], dy + residual[1]};
+    }
+
+    /**
+     * Fills a plane with the windowed, zero-mean luma of a region of the image,
+     * averaging factor x factor blocks; samples outside the region are zero
+     */
+    private static void fillPlane(ImageSpider spider, int startX, int startY, int sampleWidth, int sampleHeight,
+                                  int factor, Workspace workspace, double[] re, double[] im) {
+        int planeWidth = workspace.fft.getWidth();
+        Arrays.fill(re, 0.0);
+        Arrays.fill(im, 0.0);
+
+        double sum = 0.0;
+        double blockArea = (double) factor * factor;
+        for (int sy = 0; sy < sampleHeight; sy++) {
+            for (int sx = 0; sx < sampleWidth; sx++) {
+                double luma = 0.0;
+                for (int by = 0; by < factor; by++) {
+                    for (int bx = 0; bx < factor; bx++) {
+                        int x = startX + sx * factor + bx;
+                        int y = startY + sy * factor + by;
+                        luma += 0.299 * spider.getRedPixel(x, y)
+                              + 0.587 * spider.getGreenPixel(x, y)
+                              + 0.114 * spider.getBluePixel(x, y);
+                    }
+                }
+                luma /= blockArea;
+                re[sy * planeWidth + sx] = luma;
+                sum += luma;
+            }
+        }
+
+        // Remove the mean and taper the borders so image edges do not dominate the correlation
+        double mean = sum / ((double) sampleWidth * sampleHeight);
+        for (int sy = 0; sy < sampleHeight; sy++) {
+            double windowY = hann(sy, sampleHeight);
+            for (int sx = 0; sx < sampleWidth; sx++) {
+                int index = sy * planeWidth + sx;
+                re[index] = (re[index] - mean) * windowY * hann(sx, sampleWidth);
+            }
+        }
+    }
+
+    private static double hann(int i, int n) {
+        return n <= 1 ? 1.0 : 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / (n - 1));
+    }
+
+    /**
+     * Phase-correlates the two planes of the workspace and returns the
+     * location of the correlation peak within the allowed shift range
+     */
+    private static int[] correlate(Workspace workspace, int maxShiftX, int maxShiftY) {
+        FFT2D fft = workspace.fft;
+        double[] re1 = workspace.re1;
+        double[] im1 = workspace.im1;
+        double[] re2 = workspace.re2;
+        double[] im2 = workspace.im2;
+        fft.forward(re1, im1);
+        fft.forward(re2, im2);
+
+        // Normalized cross-power spectrum conj(F1) * F2 / |conj(F1) * F2|, stored in the first plane
+        for (int i = 0; i < re1.length; i++) {
+            double re = re1[i] * re2[i] + im1[i] * im2[i];
+            double im = re1[i] * im2[i] - im1[i] * re2[i];
+            double magnitude = Math.sqrt(re * re + im * im);
+            if (magnitude > EPSILON) {
+                re1[i] = re / magnitude;
+                im1[i] = im / magnitude;
+            } else {
+                re1[i] = 0.0;
+                im1[i] = 0.0;
+            }
+        }
+        fft.inverse(re1, im1);
+
+        int width = fft.getWidth();
+        int height = fft.getHeight();
+        int limitX = Math.min(maxShiftX, width / 2 - 1);
+        int limitY = Math.min(maxShiftY, height / 2 - 1);
+
+        // Start from zero shift and only move on a strictly higher value, so ties keep (0, 0)
+        int bestX = 0;
+        int bestY = 0;
+        double best = re1[0];
+        for (int dy = -limitY; dy <= limitY; dy++) {
+            int row = ((dy + height) % height) * width;
+            for (int dx = -limitX; dx <= limitX; dx++) {
+                double value = re1[row + (dx + width) % width];
+                if (value > best
+                        || (value == best && Math.abs(dx) + Math.abs(dy) < Math.abs(bestX) + Math.abs(bestY))) {
+                    best = value;
+                    bestX = dx;
+                    bestY = dy;
+                }
+            }
+        }
+
+        // Without a peak clearly above the correlation noise there is no shift to report
+        double sumOfSquares = 0.0;
+        for (double value : re1) {
+            sumOfSquares += value * value;
+        }
+        double rms = Math.sqrt(sumOfSquares / re1.length);
+        if (best <= EPSILON || best < MIN_PEAK_TO_RMS * rms) {
+            return new int[] {0, 0};
+        }
+        return new int[] {bestX, bestY};
+    }
+
+    private Workspace getWorkspace(int width, int height) {
+        long key = ((long) width << 32) | height;
+        Workspace workspace = workspaces.get(key);
+        if (workspace == null) {
+            workspace = new Workspace(width, height);
+            workspaces.put(key, workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * FFT and plane buffers for one plane size
+     */
+    private static class Workspace {
+        final FFT2D fft;
+        final double[] re1;
+        final double[] im1;
+        final double[] re2;
+        final double[] im2;
+
+        Workspace(int width, int height) {
+            this.fft = new FFT2D(width, height);
+            int size = width * height;
+            this.re1 = new double[size];
+            this.im1 = new double[size];
+            this.re2 = new double[size];
+            this.im2 = new double[size];
+        }
+    }
+}
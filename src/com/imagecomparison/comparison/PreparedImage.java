@@ -0,0 +1,326 @@
+package com.imagecomparison.comparison;
+
+import com.imagecomparison.processing.ImageSpider;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reference image prepared once for comparison against many candidates
+ *
+ * Building a PreparedImage extracts everything that only depends on the
+ * reference: packed RGB pixels, per-block checksums, a luma plane with
+ * per-block luma statistics, a colour histogram and an average perceptual
+ * hash. Each candidate is then compared in a single fused pass over its
+ * pixels that produces the usual pixel metrics plus the changed-block count,
+ * block-wise luma SSIM, histogram intersection and hash distance. Instances
+ * are immutable and can be shared between threads.
+ *
+ * Pixels are stored column-major (index x * height + y), the same order in
+ * which ImageSpider keeps them, so both sides are walked sequentially.
+ */
+public class PreparedImage {
+
+    public static final int BLOCK_SIZE = 16;
+
+    private static final int HASH_GRID = 8;
+    private static final int HISTOGRAM_BITS = 2;
+    private static final int HISTOGRAM_BINS = 1 << (3 * HISTOGRAM_BITS);
+    private static final long CHECKSUM_SEED = 0xcbf29ce484222325L;
+    private static final long CHECKSUM_PRIME = 0x100000001b3L;
+    private static final double SSIM_C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double SSIM_C2 = (0.03 * 255) * (0.03 * 255);
+
+    private final String path;
+    private final int width;
+    private final int height;
+    private final int[] packedPixels;
+    private final float[] lumaPlane;
+    private final long[] blockChecksums;
+    private final int[] blockPixels;
+    private final double[] blockLumaMean;
+    private final double[] blockLumaVariance;
+    private final int[] histogram;
+    private final long perceptualHash;
+
+    /**
+     * Prepares a reference image
+     * @param spider Loaded reference image
+     * @throws IllegalArgumentException If the image failed to load
+     */
+    public PreparedImage(ImageSpider spider) {
+        if (!spider.isJobDone()) {
+            throw new IllegalArgumentException("Reference image failed to load properly: " + spider.getPath());
+        }
+
+        this.path = spider.getPath();
+        this.width = spider.getWidth();
+        this.height = spider.getHeight();
+        this.packedPixels = new int[width * height];
+        this.lumaPlane = new float[width * height];
+        this.blockChecksums = newBlockChecksums(width, height);
+        this.blockPixels = new int[blockChecksums.length];
+        this.blockLumaMean = new double[blockChecksums.length];
+        this.blockLumaVariance = new double[blockChecksums.length];
+        this.histogram = new int[HISTOGRAM_BINS];
+        double[] hashCells = new double[HASH_GRID * HASH_GRID];
+
+        int blocksDown = blocksAlong(height);
+        int index = 0;
+        for (int x = 0; x < width; x++) {
+            int blockColumn = (x / BLOCK_SIZE) * blocksDown;
+            for (int y = 0; y < height; y++) {
+                int r = spider.getRedPixel(x, y);
+                int g = spider.getGreenPixel(x, y);
+                int b = spider.getBluePixel(x, y);
+                int packed = (r << 16) | (g << 8) | b;
+                float luma = luma(r, g, b);
+
+                packedPixels[index] = packed;
+                lumaPlane[index] = luma;
+                int block = blockColumn + y / BLOCK_SIZE;
+                blockChecksums[block] = (blockChecksums[block] ^ packed) * CHECKSUM_PRIME;
+                blockPixels[block]++;
+                blockLumaMean[block] += luma;
+                blockLumaVariance[block] += (double) luma * luma;
+                histogram[histogramBin(r, g, b)]++;
+                hashCells[hashCell(x, y)] += luma;
+                index++;
+            }
+        }
+
+        // Turn the per-block sums into mean and variance once, for every later SSIM
+        for (int block = 0; block < blockPixels.length; block++) {
+            double mean = blockLumaMean[block] / blockPixels[block];
+            blockLumaMean[block] = mean;
+            blockLumaVariance[block] = blockLumaVariance[block] / blockPixels[block] - mean * mean;
+        }
+
+        this.perceptualHash = averageHash(hashCells);
+    }
+
+    /**
+     * Compares a candidate image against this reference in a single pass
+     * @param candidate Loaded candidate image
+     * @return ComparisonResult with pixel, block, SSIM, histogram and hash metrics
+     */
+    public ComparisonResult compareTo(ImageSpider candidate) {
+        if (!candidate.isJobDone()) {
+            return new ComparisonResult(false, 0.0, Double.MAX_VALUE, 0, 0, false,
+                "Error", "Candidate image failed to load properly: " + candidate.getPath());
+        }
+
+        if (candidate.getWidth() != width || candidate.getHeight() != height) {
+            return new ComparisonResult(false, 0.0, Double.MAX_VALUE, 0,
+                width * height, false,
+                "Dimension Mismatch",
+                String.format("Image 1: %dx%d, Image 2: %dx%d",
+                    width, height, candidate.getWidth(), candidate.getHeight()));
+        }
+
+        int totalPixels = width * height;
+        int matchingPixels = 0;
+        double totalSquaredError = 0.0;
+        long[] candidateChecksums = newBlockChecksums(width, height);
+        double[] candidateLumaSum = new double[blockChecksums.length];
+        double[] candidateLumaSquares = new double[blockChecksums.length];
+        double[] crossLuma = new double[blockChecksums.length];
+        int[] candidateHistogram = new int[HISTOGRAM_BINS];
+        double[] hashCells = new double[HASH_GRID * HASH_GRID];
+
+        // Fused pass: pixel metrics, block checksums, luma statistics, histogram and hash cells at once
+        int blocksDown = blocksAlong(height);
+        int index = 0;
+        for (int x = 0; x < width; x++) {
+            int blockColumn = (x / BLOCK_SIZE) * blocksDown;
+            for (int y = 0; y < height; y++) {
+                int r = candidate.getRedPixel(x, y);
+                int g = candidate.getGreenPixel(x, y);
+                int b = candidate.getBluePixel(x, y);
+                int packed = (r << 16) | (g << 8) | b;
+                int reference = packedPixels[index];
+                float referenceLuma = lumaPlane[index];
+                float luma = luma(r, g, b);
+                index++;
+
+                if (packed == reference) {
+                    matchingPixels++;
+                } else {
+                    int dr = ((reference >> 16) & 0xFF) - r;
+                    int dg = ((reference >> 8) & 0xFF) - g;
+                    int db = (reference & 0xFF) - b;
+                    totalSquaredError += dr * dr + dg * dg + db * db;
+                }
+
+                int block = blockColumn + y / BLOCK_SIZE;
+                candidateChecksums[block] = (candidateChecksums[block] ^ packed) * CHECKSUM_PRIME;
+                candidateLumaSum[block] += luma;
+                candidateLumaSquares[block] += (double) luma * luma;
+                crossLuma[block] += (double) referenceLuma * luma;
+                candidateHistogram[histogramBin(r, g, b)]++;
+                hashCells[hashCell(x, y)] += luma;
+            }
+        }
+
+        double ssimSum = 0.0;
+        for (int block = 0; block < blockPixels.length; block++) {
+            double n = blockPixels[block];
+            double meanX = blockLumaMean[block];
+            double meanY = candidateLumaSum[block] / n;
+            double varianceY = candidateLumaSquares[block] / n - meanY * meanY;
+            double covariance = crossLuma[block] / n - meanX * meanY;
+            ssimSum += ((2 * meanX * meanY + SSIM_C1) * (2 * covariance + SSIM_C2))
+                     / ((meanX * meanX + meanY * meanY + SSIM_C1) * (blockLumaVariance[block] + varianceY + SSIM_C2));
+        }
+        double meanSsim = ssimSum / blockPixels.length;
+
+        int changedBlocks = 0;
+        for (int i = 0; i < blockChecksums.length; i++) {
+            if (blockChecksums[i] != candidateChecksums[i]) {
+                changedBlocks++;
+            }
+        }
+
+        int histogramOverlap = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            histogramOverlap += Math.min(histogram[i], candidateHistogram[i]);
+        }
+
+        int hashDistance = Long.bitCount(perceptualHash ^ averageHash(hashCells));
+
+        double similarityPercentage = (double) matchingPixels / totalPixels * 100.0;
+        double meanSquaredError = totalSquaredError / (totalPixels * 3); // Divide by 3 for RGB channels
+        boolean exactMatch = matchingPixels == totalPixels;
+
+        String details = String.format(Locale.ROOT,
+            "Analyzed %dx%d images with %d total pixels; changed blocks: %d / %d; luma SSIM: %.4f; "
+                + "histogram intersection: %.2f%%; perceptual hash distance: %d / %d",
+            width, height, totalPixels, changedBlocks, blockChecksums.length, meanSsim,
+            (double) histogramOverlap / totalPixels * 100.0, hashDistance, HASH_GRID * HASH_GRID);
+
+        return new ComparisonResult(exactMatch, similarityPercentage, meanSquaredError,
+                                  matchingPixels, totalPixels, true,
+                                  "Prepared Baseline Analysis", details);
+    }
+
+    /**
+     * Loads and compares candidate images in parallel
+     * @param candidatePaths Paths of the candidate images
+     * @return One result per candidate, in the order of the stream; candidates
+     *         that cannot be loaded yield an "Error" result
+     */
+    public List<ComparisonResult> compareAll(Stream<String> candidatePaths) {
+        return candidatePaths.parallel()
+            .map(this::compareTo)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Loads and compares a single candidate image
+     * @param candidatePath Path of the candidate image
+     * @return ComparisonResult, or an "Error" result if the image cannot be loaded
+     */
+    public ComparisonResult compareTo(String candidatePath) {
+        try {
+            return compareTo(new ImageSpider(candidatePath));
+        } catch (Exception e) {
+            return new ComparisonResult(false, 0.0, Double.MAX_VALUE, 0, 0, false,
+                "Error", "Candidate image failed to load: " + candidatePath + " (" + e.getMessage() + ")");
+        }
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the luma value of a specific pixel
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Luma value (0-255)
+     */
+    public float getLuma(int x, int y) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            return lumaPlane[x * height + y];
+        }
+        throw new IndexOutOfBoundsException("Pixel coordinates out of bounds: (" + x + ", " + y + ")");
+    }
+
+    /**
+     * Get the 64-bit average hash of the reference image
+     * @return Perceptual hash, one bit per cell of an 8x8 grid
+     */
+    public long getPerceptualHash() {
+        return this.perceptualHash;
+    }
+
+    private static float luma(int r, int g, int b) {
+        return 0.299f * r + 0.587f * g + 0.114f * b;
+    }
+
+    private static int histogramBin(int r, int g, int b) {
+        int shift = 8 - HISTOGRAM_BITS;
+        return ((r >> shift) << (2 * HISTOGRAM_BITS)) | ((g >> shift) << HISTOGRAM_BITS) | (b >> shift);
+    }
+
+    private int hashCell(int x, int y) {
+        return (int) ((long) y * HASH_GRID / height) * HASH_GRID + (int) ((long) x * HASH_GRID / width);
+    }
+
+    /**
+     * Builds the hash from summed cell luma: a bit is set when the cell's
+     * average luma is above the average over all cells
+     */
+    private long averageHash(double[] cells) {
+        double[] means = new double[cells.length];
+        double total = 0.0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            means[cell] = cells[cell] / cellArea(cell);
+            total += means[cell];
+        }
+
+        double mean = total / cells.length;
+        long hash = 0L;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (means[cell] > mean) {
+                hash |= 1L << cell;
+            }
+        }
+        return hash;
+    }
+
+    private int cellArea(int cell) {
+        int row = cell / HASH_GRID;
+        int column = cell % HASH_GRID;
+        return Math.max(1, cellSpan(column, width) * cellSpan(row, height));
+    }
+
+    /**
+     * Number of pixels along one axis that hashCell() maps to the given cell index
+     */
+    private static int cellSpan(int cellIndex, int size) {
+        int start = (int) (((long) cellIndex * size + HASH_GRID - 1) / HASH_GRID);
+        int end = (int) (((long) (cellIndex + 1) * size + HASH_GRID - 1) / HASH_GRID);
+        return end - start;
+    }
+
+    private static long[] newBlockChecksums(int width, int height) {
+        long[] checksums = new long[blocksAlong(width) * blocksAlong(height)];
+        Arrays.fill(checksums, CHECKSUM_SEED);
+        return checksums;
+    }
+
+    private static int blocksAlong(int size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+}
@@ -0,0 +1,168 @@
+package com.imagecomparison.processing;
+
+/**
+ * Pure-Java radix-2 two-dimensional FFT for a fixed plane size
+ *
+ * Twiddle factors, bit-reversal tables and the column scratch buffers are
+ * computed once per instance, so repeated transforms of the same size do not
+ * allocate. Planes are stored row-major as separate real and imaginary arrays
+ * of length width * height. Instances are not thread-safe.
+ */
+public class FFT2D {
+
+    private final int width;
+    private final int height;
+    private final double[] cosRow;
+    private final double[] sinRow;
+    private final int[] reverseRow;
+    private final double[] cosColumn;
+    private final double[] sinColumn;
+    private final int[] reverseColumn;
+    private final double[] columnRe;
+    private final double[] columnIm;
+
+    /**
+     * Constructor for FFT2D
+     * @param width Plane width, must be a power of two
+     * @param height Plane height, must be a power of two
+     */
+    public FFT2D(int width, int height) {
+        if (!isPowerOfTwo(width) || !isPowerOfTwo(height)) {
+            throw new IllegalArgumentException("FFT dimensions must be powers of two: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.cosRow = new double[width / 2];
+        this.sinRow = new double[width / 2];
+        this.reverseRow = new int[width];
+        this.cosColumn = new double[height / 2];
+        this.sinColumn = new double[height / 2];
+        this.reverseColumn = new int[height];
+        this.columnRe = new double[height];
+        this.columnIm = new double[height];
+        fillTables(width, cosRow, sinRow, reverseRow);
+        fillTables(height, cosColumn, sinColumn, reverseColumn);
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Forward transform, in place
+     * @param re Real parts (row-major, width * height)
+     * @param im Imaginary parts (row-major, width * height)
+     */
+    public void forward(double[] re, double[] im) {
+        transform(re, im, false);
+    }
+
+    /**
+     * Inverse transform, in place, including the 1/(width * height) scaling
+     * @param re Real parts (row-major, width * height)
+     * @param im Imaginary parts (row-major, width * height)
+     */
+    public void inverse(double[] re, double[] im) {
+        transform(re, im, true);
+        double scale = 1.0 / ((double) width * height);
+        for (int i = 0; i < re.length; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    private void transform(double[] re, double[] im, boolean inverse) {
+        if (re.length != width * height || im.length != width * height) {
+            throw new IllegalArgumentException("Plane size does not match FFT size " + width + "x" + height);
+        }
+
+        // Rows are contiguous and can be transformed where they are
+        for (int y = 0; y < height; y++) {
+            transform1D(re, im, y * width, width, cosRow, sinRow, reverseRow, inverse);
+        }
+
+        // Columns are copied into scratch buffers to keep the butterflies cache friendly
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                columnRe[y] = re[y * width + x];
+                columnIm[y] = im[y * width + x];
+            }
+            transform1D(columnRe, columnIm, 0, height, cosColumn, sinColumn, reverseColumn, inverse);
+            for (int y = 0; y < height; y++) {
+                re[y * width + x] = columnRe[y];
+                im[y * width + x] = columnIm[y];
+            }
+        }
+    }
+
+    /**
+     * Iterative Cooley-Tukey transform of n values starting at offset
+     */
+    private static void transform1D(double[] re, double[] im, int offset, int n,
+                                    double[] cos, double[] sin, int[] reverse, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = reverse[i];
+            if (j > i) {
+                int a = offset + i;
+                int b = offset + j;
+                double tempRe = re[a];
+                double tempIm = im[a];
+                re[a] = re[b];
+                im[a] = im[b];
+                re[b] = tempRe;
+                im[b] = tempIm;
+            }
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int tableStep = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0; k < half; k++) {
+                    double wRe = cos[k * tableStep];
+                    double wIm = sign * sin[k * tableStep];
+                    int a = offset + start + k;
+                    int b = offset + start + k + half;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+    }
+
+    private static void fillTables(int n, double[] cos, double[] sin, int[] reverse) {
+        for (int k = 0; k < n / 2; k++) {
+            double angle = 2.0 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) {
+            reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Checks whether a value is a positive power of two
+     */
+    public static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+
+    /**
+     * Smallest power of two greater than or equal to the given value
+     */
+    public static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}